@@ -30,6 +30,7 @@
  */
 package willkara.dplajavawrapper;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.logging.Level;
@@ -44,13 +45,29 @@ import net.sf.json.JSONObject;
  * information regarding the item. It has the subclass SourceResource which
  * contains all of the information in the SourceResource JSONObject
  *
+ * The fields are decoded once, when the item is made, so the getters don't
+ * go back to the JSON.
+ *
  * @author willkara
  *
  *
  */
 public class DplaItem {
 
-    JSONObject jsonParent;
+    String id;
+    String isShownAt;
+    String dataProvider;
+    Provider[] providers;
+    SourceResource sourceResource;
+    //The item's own JSON, copied out of the response it came from.
+    byte[] source;
+
+    /**
+     * Used by ItemDecoder, which fills in the fields itself.
+     */
+    DplaItem() {
+        super();
+    }
 
     /**
      * Takes in the JSONobject representing the
@@ -58,11 +75,14 @@ public class DplaItem {
      * @param j The JSON object for the individual item
      */
     public DplaItem(JSONObject j) {
-
-
-        jsonParent = j;
-
-
+        try {
+            ItemDecoder.decodeItem(j.toString().getBytes(ItemDecoder.UTF8), this);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        if (sourceResource != null) {
+            sourceResource.sr = j.getJSONObject("sourceResource");
+        }
     }
 
     /**
@@ -70,10 +90,9 @@ public class DplaItem {
      * @return The URL to the item
      */
     public URL getItemURL() {
-        String shownAt = jsonParent.getString("isShownAt");
         URL shownAtUrl = null;
         try {
-            shownAtUrl = new URL(shownAt);
+            shownAtUrl = new URL(isShownAt);
         } catch (MalformedURLException ex) {
             Logger.getLogger(DplaItem.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -84,15 +103,10 @@ public class DplaItem {
     /**
      *
      * @return Returns the sourceResource object. This contains much of the
-     * information about the item.
+     * information about the item. Null if the item doesn't have one.
      */
     public SourceResource getSourceResource() {
-
-        SourceResource sr = new SourceResource(jsonParent);
-
-        return sr;
-
-
+        return sourceResource;
     }
 
     /**
@@ -100,7 +114,7 @@ public class DplaItem {
      * @return The objects dpla id.
      */
     public String getID() {
-        return jsonParent.getString("id");
+        return id;
     }
 
     /**
@@ -108,12 +122,15 @@ public class DplaItem {
      * @return The data provider of the item.
      */
     public String getDataProvider() {
+        return dataProvider;
+    }
 
-        try {
-            return jsonParent.getString("dataProvider");
-        } catch (Exception e) {
-            return null;
-        }
+    /**
+     *
+     * @return The providers of the item, or null if it lists none.
+     */
+    public Provider[] getProviders() {
+        return providers == null ? null : providers.clone();
     }
 
     /**
@@ -122,11 +139,8 @@ public class DplaItem {
      * @return A String containing the JSON value for the item
      */
     public String getJSONString() {
-        return jsonParent.toString();
+        return new String(source, ItemDecoder.UTF8);
     }
-    
-    
-    
 
     //------------------------------------------------------------------------//
     /**
@@ -140,12 +154,37 @@ public class DplaItem {
      */
     public static class SourceResource {
 
+        /**
+         * @deprecated Only set when the SourceResource was made from a
+         * JSONObject. Items returned by SearchQuery.search() leave it null, use
+         * the getters instead.
+         */
+        @Deprecated
         public JSONObject sr;
+        String[] titles;
+        String[] descriptions;
+        Subject[] subjects;
+        String[] rights;
+        Language[] languages;
+        String[] formats;
+        String[] publishers;
+        String[] creators;
+        Provider[] providers;
+        ItemCollection[] collections;
+        Place[] spatial;
+
+        /**
+         * Used by ItemDecoder, which fills in the fields itself.
+         */
+        SourceResource() {
+            super();
+        }
 
         /**
          *
          * Take in the parent json object and find/create the sourceResource
-         * object.
+         * object. The whole parent is decoded so that, like getSourceResource(),
+         * the item's provider is used when the sourceResource has none.
          *
          * @param j The parent json object
          *
@@ -153,6 +192,13 @@ public class DplaItem {
         public SourceResource(JSONObject j) {
             super();
             sr = j.getJSONObject("sourceResource");
+            DplaItem parent = new DplaItem();
+            parent.sourceResource = this;
+            try {
+                ItemDecoder.decodeItem(j.toString().getBytes(ItemDecoder.UTF8), parent);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
         }
 
         /**
@@ -161,11 +207,7 @@ public class DplaItem {
          * @return The title of the item.
          */
         public String getTitle() {
-            try {
-                return sr.getString("title");
-            } catch (JSONException e) {
-                return null;
-            }
+            return first(titles);
         }
 
         /**
@@ -173,31 +215,25 @@ public class DplaItem {
          * @return The description of the item.
          */
         public String getDescription() {
-            try {
-                return sr.getString("description");
-            } catch (JSONException e) {
-                return null;
-            }
+            return first(descriptions);
         }
 
         /**
          *
          * @return An array of strings containing the subjects of the item. Each
-         * item of the array is a different subject
+         * item of the array is a different subject, commas in a subject's name
+         * are kept. Empty if the item has an empty list of subjects.
          */
         public String[] getSubjects() {
-            try {
-                JSONArray subArray = sr.getJSONArray("subject");
-                String sub = "";
-                for (int i = 0; i < subArray.size(); i++) {
-                    JSONObject rec = subArray.getJSONObject(i);
-                    sub += rec.getString("name").trim() + ",";
-                    // ...
-                }
-                return sub.split(",");
-            } catch (JSONException e) {
+            if (subjects == null) {
                 return null;
             }
+            String[] names = new String[subjects.length];
+            for (int i = 0; i < subjects.length; i++) {
+                String name = subjects[i].getName();
+                names[i] = name == null ? null : name.trim();
+            }
+            return names;
         }
 
         /**
@@ -207,11 +243,7 @@ public class DplaItem {
          * @return The copyright information for each item.
          */
         public String getCopyRights() {
-            try {
-                return sr.getString("rights");
-            } catch (JSONException e) {
-                return null;
-            }
+            return first(rights);
         }
 
         /**
@@ -219,23 +251,41 @@ public class DplaItem {
          * @return The name of the language that the item is written in.
          */
         public String getLanguageName() {
-            try {
-                return getLanguageInfo().getJSONObject(0).getString("name");
-            } catch (JSONException e) {
-                return null;
-            }
+            return languages == null || languages.length == 0 ? null : languages[0].getName();
+        }
+
+        /**
+         *
+         * @return The languages that the item is written in, or null if it
+         * lists none.
+         */
+        public Language[] getLanguages() {
+            return languages == null ? null : languages.clone();
         }
 
         /**
          *
          * @return The JSONArray containing the langauge info.
+         * @deprecated Builds a new JSONArray on every call, use getLanguages()
+         * instead.
          */
+        @Deprecated
         public JSONArray getLanguageInfo() {
-            try {
-                return sr.getJSONArray("language");
-            } catch (JSONException e) {
+            if (languages == null) {
                 return null;
             }
+            JSONArray info = new JSONArray();
+            for (Language l : languages) {
+                JSONObject o = new JSONObject();
+                if (l.getName() != null) {
+                    o.put("name", l.getName());
+                }
+                if (l.getIso639_3() != null) {
+                    o.put("iso639_3", l.getIso639_3());
+                }
+                info.add(o);
+            }
+            return info;
         }
 
         /**
@@ -244,11 +294,7 @@ public class DplaItem {
          * written in.
          */
         public String getISOLanguage() {
-            try {
-                return getLanguageInfo().getJSONObject(0).getString("iso639_3");
-            } catch (JSONException e) {
-                return null;
-            }
+            return languages == null || languages.length == 0 ? null : languages[0].getIso639_3();
         }
 
         /**
@@ -256,11 +302,7 @@ public class DplaItem {
          * @return The format of the item.
          */
         public String getFormat() {
-            try {
-                return sr.getString("format");
-            } catch (JSONException e) {
-                return null;
-            }
+            return first(formats);
         }
 
         /**
@@ -268,11 +310,7 @@ public class DplaItem {
          * @return The publisher of the item.
          */
         public String getPublisher() {
-            try {
-                return sr.getString("publisher");
-            } catch (JSONException e) {
-                return null;
-            }
+            return first(publishers);
         }
 
         /**
@@ -280,18 +318,7 @@ public class DplaItem {
          * @return A String array containing the creators of the item.
          */
         public String[] getCreators() {
-            try {
-                Object[] creatorJSONarray = sr.getJSONArray("creator").toArray();
-                String[] creatorArray = new String[creatorJSONarray.length];
-                int i = 0;
-                for (Object creator : creatorJSONarray) {
-                    creatorArray[i] = creator.toString();
-                    i++;
-                }
-                return creatorArray;
-            } catch (JSONException e) {
-                return null;
-            }
+            return creators == null ? null : creators.clone();
         }
 
         /**
@@ -299,11 +326,24 @@ public class DplaItem {
          * @return The group/person/entity that is providing the item.
          */
         public String getProviderName() {
-            try {
-                return sr.getJSONArray("provider").toString();
-            } catch (JSONException e) {
-                return null;
-            }
+            return providers == null || providers.length == 0 ? null : providers[0].getName();
+        }
+
+        /**
+         *
+         * @return The places the item is about, or null if it lists none.
+         */
+        public Place[] getSpatial() {
+            return spatial == null ? null : spatial.clone();
+        }
+
+        /**
+         *
+         * @return The collections containing the item, or null if it lists
+         * none.
+         */
+        public ItemCollection[] getCollections() {
+            return collections == null ? null : collections.clone();
         }
 
         /**
@@ -311,11 +351,7 @@ public class DplaItem {
          * @return A String containing the collection ID of the collection containing the item.
          */
         public String getCollectionID() {
-            try {
-                return sr.getJSONObject("collection").getString("id");
-            } catch (JSONException e) {
-                return null;
-            }
+            return collections == null || collections.length == 0 ? null : collections[0].getId();
         }
 
         /**
@@ -323,11 +359,7 @@ public class DplaItem {
          * @return The name of the collection that the item is in.
          */
         public String getCollectionNAME() {
-            try {
-                return sr.getJSONObject("collection").getString("name");
-            } catch (JSONException e) {
-                return null;
-            }
+            return collections == null || collections.length == 0 ? null : collections[0].getName();
         }
 
         /**
@@ -336,11 +368,215 @@ public class DplaItem {
          *
          */
         public String getCollectionTITLE() {
-            try {
-                return sr.getJSONObject("collection").getString("title");
-            } catch (JSONException e) {
-                return null;
-            }
+            return collections == null || collections.length == 0 ? null : collections[0].getTitle();
+        }
+
+        /**
+         * Text fields can hold one value or several, this gives back the first.
+         */
+        private static String first(String[] values) {
+            return values == null || values.length == 0 ? null : values[0];
+        }
+    }
+
+    //------------------------------------------------------------------------//
+    /**
+     * A language the item is written in.
+     */
+    public static final class Language {
+
+        private final String name;
+        private final String iso639_3;
+
+        Language(String name, String iso639_3) {
+            this.name = name;
+            this.iso639_3 = iso639_3;
+        }
+
+        /**
+         *
+         * @return The name of the language.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return The iso639_3 code of the language.
+         */
+        public String getIso639_3() {
+            return iso639_3;
+        }
+    }
+
+    /**
+     * A subject of the item.
+     */
+    public static final class Subject {
+
+        private final String name;
+
+        Subject(String name) {
+            this.name = name;
+        }
+
+        /**
+         *
+         * @return The name of the subject.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * A collection that holds the item.
+     */
+    public static final class ItemCollection {
+
+        private final String id;
+        private final String name;
+        private final String title;
+
+        ItemCollection(String id, String name, String title) {
+            this.id = id;
+            this.name = name;
+            this.title = title;
+        }
+
+        /**
+         *
+         * @return The id of the collection.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         *
+         * @return The name of the collection.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return The title of the collection.
+         */
+        public String getTitle() {
+            return title;
+        }
+    }
+
+    /**
+     * The group/person/entity that is providing the item.
+     */
+    public static final class Provider {
+
+        private final String id;
+        private final String name;
+
+        Provider(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        /**
+         *
+         * @return The @id URI of the provider.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         *
+         * @return The name of the provider.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * A place the item is about. Any of the parts can be null.
+     */
+    public static final class Place {
+
+        private final String name;
+        private final String city;
+        private final String county;
+        private final String state;
+        private final String region;
+        private final String country;
+        private final String coordinates;
+
+        Place(String name, String city, String county, String state, String region, String country, String coordinates) {
+            this.name = name;
+            this.city = city;
+            this.county = county;
+            this.state = state;
+            this.region = region;
+            this.country = country;
+            this.coordinates = coordinates;
+        }
+
+        /**
+         *
+         * @return The name of the place.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return The city.
+         */
+        public String getCity() {
+            return city;
+        }
+
+        /**
+         *
+         * @return The county.
+         */
+        public String getCounty() {
+            return county;
+        }
+
+        /**
+         *
+         * @return The state.
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         *
+         * @return The region.
+         */
+        public String getRegion() {
+            return region;
+        }
+
+        /**
+         *
+         * @return The country.
+         */
+        public String getCountry() {
+            return country;
+        }
+
+        /**
+         *
+         * @return The "latitude, longitude" of the place.
+         */
+        public String getCoordinates() {
+            return coordinates;
         }
     }
 }
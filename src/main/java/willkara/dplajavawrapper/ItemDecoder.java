@@ -0,0 +1,1028 @@
+/*
+ * Original Author: Wiliam Karavites
+ * wkaravites@gmail.com
+ * 
+ * You are free to use this software as you wish as long as you follow the license below
+ * I just ask that you attirbute the contributions of myself and other developers.
+ * 
+ * 
+ * The MIT License (MIT)
+ *
+ * Copyright (c) <2013> <William Karavites>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package willkara.dplajavawrapper;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ *
+ * Decodes the JSON returned by the DPLA API straight into DplaItems. It works
+ * on the raw UTF-8 bytes of the response and only knows about the fields in
+ * the DPLA item schema, everything else is skipped over without being turned
+ * into Strings.
+ *
+ * Each object in the schema has a table of its field names built once. A key
+ * is matched by hashing its bytes while looking for the closing quote and
+ * then comparing them in place against the table, so no String is made for
+ * keys at all.
+ *
+ * @author willkara
+ */
+final class ItemDecoder {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Something that can be looked up by the bytes of its JSON key.
+     */
+    interface Field {
+
+        byte[] key();
+    }
+
+    //The fields of the top level search response.
+    enum ResponseField implements Field {
+
+        DOCS("docs");
+        private final byte[] key;
+
+        ResponseField(String k) {
+            key = k.getBytes(UTF8);
+        }
+
+        @Override
+        public byte[] key() {
+            return key;
+        }
+    }
+
+    //The fields of a single item in the docs array.
+    enum ItemField implements Field {
+
+        ID("id"), IS_SHOWN_AT("isShownAt"), DATA_PROVIDER("dataProvider"),
+        PROVIDER("provider"), SOURCE_RESOURCE("sourceResource");
+        private final byte[] key;
+
+        ItemField(String k) {
+            key = k.getBytes(UTF8);
+        }
+
+        @Override
+        public byte[] key() {
+            return key;
+        }
+    }
+
+    //The fields of the sourceResource object.
+    enum SourceField implements Field {
+
+        TITLE("title"), DESCRIPTION("description"), SUBJECT("subject"),
+        RIGHTS("rights"), LANGUAGE("language"), FORMAT("format"),
+        PUBLISHER("publisher"), CREATOR("creator"), PROVIDER("provider"),
+        COLLECTION("collection"), SPATIAL("spatial");
+        private final byte[] key;
+
+        SourceField(String k) {
+            key = k.getBytes(UTF8);
+        }
+
+        @Override
+        public byte[] key() {
+            return key;
+        }
+    }
+
+    //The fields of the small objects nested in an item: languages, subjects,
+    //collections, providers and places all share this one table.
+    enum NestedField implements Field {
+
+        AT_ID("@id"), ID("id"), NAME("name"), TITLE("title"), ISO639_3("iso639_3"),
+        CITY("city"), COUNTY("county"), STATE("state"), REGION("region"),
+        COUNTRY("country"), COORDINATES("coordinates");
+        private final byte[] key;
+
+        NestedField(String k) {
+            key = k.getBytes(UTF8);
+        }
+
+        @Override
+        public byte[] key() {
+            return key;
+        }
+    }
+
+    private static final FieldTable<ResponseField> RESPONSE = new FieldTable<ResponseField>(ResponseField.values());
+    private static final FieldTable<ItemField> ITEM = new FieldTable<ItemField>(ItemField.values());
+    private static final FieldTable<SourceField> SOURCE = new FieldTable<SourceField>(SourceField.values());
+    private static final FieldTable<NestedField> NESTED = new FieldTable<NestedField>(NestedField.values());
+    private static final DplaItem[] NO_ITEMS = new DplaItem[0];
+    private static final String[] NO_STRINGS = new String[0];
+    private final byte[] buf;
+    private int pos;
+
+    private ItemDecoder(byte[] json) {
+        buf = json;
+        pos = 0;
+    }
+
+    /**
+     * Decodes a whole search response into its items.
+     *
+     * @param json The UTF-8 bytes of the response.
+     * @return The items in the docs array, empty if there is none.
+     * @throws IOException If the response is not valid JSON.
+     */
+    static DplaItem[] decodeResponse(byte[] json) throws IOException {
+        ItemDecoder d = new ItemDecoder(json);
+        DplaItem[] items = NO_ITEMS;
+        if (d.openObject()) {
+            do {
+                ResponseField f = d.key(RESPONSE);
+                if (f == ResponseField.DOCS) {
+                    items = d.items();
+                } else {
+                    d.skipValue();
+                }
+            } while (d.nextMember());
+        }
+        d.end();
+        return items;
+    }
+
+    /**
+     * Decodes a single item.
+     *
+     * @param json The UTF-8 bytes of the item's JSON object.
+     * @param into The item to fill in.
+     * @throws IOException If the item is not valid JSON.
+     */
+    static void decodeItem(byte[] json, DplaItem into) throws IOException {
+        ItemDecoder d = new ItemDecoder(json);
+        d.item(into);
+        d.end();
+    }
+
+    //------------------------------------------------------------------------//
+    // The schema
+    //------------------------------------------------------------------------//
+    private DplaItem[] items() throws IOException {
+        if (!openArray()) {
+            return NO_ITEMS;
+        }
+        List<DplaItem> list = new ArrayList<DplaItem>();
+        do {
+            if (peek() == '{') {
+                DplaItem item = new DplaItem();
+                item(item);
+                list.add(item);
+            } else {
+                skipValue();
+            }
+        } while (nextElement());
+        return list.toArray(new DplaItem[list.size()]);
+    }
+
+    private void item(DplaItem item) throws IOException {
+        skipWhitespace();
+        int start = pos;
+        if (openObject()) {
+            do {
+                ItemField f = key(ITEM);
+                if (f == null) {
+                    skipValue();
+                    continue;
+                }
+                switch (f) {
+                    case ID:
+                        item.id = string();
+                        break;
+                    case IS_SHOWN_AT:
+                        item.isShownAt = string();
+                        break;
+                    case DATA_PROVIDER:
+                        item.dataProvider = string();
+                        break;
+                    case PROVIDER:
+                        item.providers = nested(PROVIDER);
+                        break;
+                    case SOURCE_RESOURCE:
+                        if (peek() != '{') {
+                            skipValue();
+                            break;
+                        }
+                        //SourceResource(JSONObject) hands in the one to fill.
+                        if (item.sourceResource == null) {
+                            item.sourceResource = new DplaItem.SourceResource();
+                        }
+                        sourceResource(item.sourceResource);
+                        break;
+                }
+            } while (nextMember());
+        }
+        //Keep a copy of just this item, not the whole response.
+        item.source = Arrays.copyOfRange(buf, start, pos);
+
+        //The API puts the provider on the item, but it describes where the
+        //sourceResource came from so hand it down if it has none of its own.
+        if (item.sourceResource != null && item.sourceResource.providers == null) {
+            item.sourceResource.providers = item.providers;
+        }
+    }
+
+    private void sourceResource(DplaItem.SourceResource sr) throws IOException {
+        if (!openObject()) {
+            return;
+        }
+        do {
+            SourceField f = key(SOURCE);
+            if (f == null) {
+                skipValue();
+                continue;
+            }
+            switch (f) {
+                case TITLE:
+                    sr.titles = strings();
+                    break;
+                case DESCRIPTION:
+                    sr.descriptions = strings();
+                    break;
+                case SUBJECT:
+                    sr.subjects = nested(SUBJECT);
+                    break;
+                case RIGHTS:
+                    sr.rights = strings();
+                    break;
+                case LANGUAGE:
+                    sr.languages = nested(LANGUAGE);
+                    break;
+                case FORMAT:
+                    sr.formats = strings();
+                    break;
+                case PUBLISHER:
+                    sr.publishers = strings();
+                    break;
+                case CREATOR:
+                    sr.creators = strings();
+                    break;
+                case PROVIDER:
+                    sr.providers = nested(PROVIDER);
+                    break;
+                case COLLECTION:
+                    sr.collections = nested(COLLECTION);
+                    break;
+                case SPATIAL:
+                    sr.spatial = nested(PLACE);
+                    break;
+            }
+        } while (nextMember());
+    }
+
+    /**
+     *
+     * Reads one kind of nested object for nested().
+     *
+     * @param <T> The record the object is read into.
+     */
+    abstract static class Nested<T> {
+
+        /**
+         * @return The record for a bare string, taken as the name.
+         */
+        abstract T named(String name);
+
+        /**
+         * @return The record for the object about to be read.
+         */
+        abstract T read(ItemDecoder d) throws IOException;
+
+        abstract T[] array(int size);
+    }
+
+    private static final Nested<DplaItem.Language> LANGUAGE = new Nested<DplaItem.Language>() {
+        @Override
+        DplaItem.Language named(String name) {
+            return new DplaItem.Language(name, null);
+        }
+
+        @Override
+        DplaItem.Language read(ItemDecoder d) throws IOException {
+            return d.language();
+        }
+
+        @Override
+        DplaItem.Language[] array(int size) {
+            return new DplaItem.Language[size];
+        }
+    };
+    private static final Nested<DplaItem.Subject> SUBJECT = new Nested<DplaItem.Subject>() {
+        @Override
+        DplaItem.Subject named(String name) {
+            return new DplaItem.Subject(name);
+        }
+
+        @Override
+        DplaItem.Subject read(ItemDecoder d) throws IOException {
+            return d.subject();
+        }
+
+        @Override
+        DplaItem.Subject[] array(int size) {
+            return new DplaItem.Subject[size];
+        }
+    };
+    private static final Nested<DplaItem.ItemCollection> COLLECTION = new Nested<DplaItem.ItemCollection>() {
+        @Override
+        DplaItem.ItemCollection named(String name) {
+            return new DplaItem.ItemCollection(null, name, null);
+        }
+
+        @Override
+        DplaItem.ItemCollection read(ItemDecoder d) throws IOException {
+            return d.collection();
+        }
+
+        @Override
+        DplaItem.ItemCollection[] array(int size) {
+            return new DplaItem.ItemCollection[size];
+        }
+    };
+    private static final Nested<DplaItem.Provider> PROVIDER = new Nested<DplaItem.Provider>() {
+        @Override
+        DplaItem.Provider named(String name) {
+            return new DplaItem.Provider(null, name);
+        }
+
+        @Override
+        DplaItem.Provider read(ItemDecoder d) throws IOException {
+            return d.provider();
+        }
+
+        @Override
+        DplaItem.Provider[] array(int size) {
+            return new DplaItem.Provider[size];
+        }
+    };
+    private static final Nested<DplaItem.Place> PLACE = new Nested<DplaItem.Place>() {
+        @Override
+        DplaItem.Place named(String name) {
+            return new DplaItem.Place(name, null, null, null, null, null, null);
+        }
+
+        @Override
+        DplaItem.Place read(ItemDecoder d) throws IOException {
+            return d.place();
+        }
+
+        @Override
+        DplaItem.Place[] array(int size) {
+            return new DplaItem.Place[size];
+        }
+    };
+
+    /**
+     * Reads a nested field. These can show up either on their own or in an
+     * array, depending on the item, so both are accepted. A bare string is
+     * taken as the name. Anything else is skipped, and if nothing usable is
+     * left the field stays null.
+     *
+     * @param type The kind of object the field holds.
+     * @return The records read, or null.
+     */
+    private <T> T[] nested(Nested<T> type) throws IOException {
+        if (!notNull()) {
+            return null;
+        }
+        List<T> list = new ArrayList<T>();
+        boolean many = peek() == '[';
+        boolean more = !many || openArray();
+        while (more) {
+            byte b = peek();
+            if (b == '"') {
+                list.add(type.named(string()));
+            } else if (b == '{') {
+                list.add(type.read(this));
+            } else {
+                skipValue();
+            }
+            more = many && nextElement();
+        }
+        return many || !list.isEmpty() ? list.toArray(type.array(list.size())) : null;
+    }
+
+    private DplaItem.Language language() throws IOException {
+        String name = null, iso = null;
+        if (openObject()) {
+            do {
+                NestedField f = key(NESTED);
+                if (f == NestedField.NAME) {
+                    name = string();
+                } else if (f == NestedField.ISO639_3) {
+                    iso = string();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        return new DplaItem.Language(name, iso);
+    }
+
+    private DplaItem.Subject subject() throws IOException {
+        String name = null;
+        if (openObject()) {
+            do {
+                if (key(NESTED) == NestedField.NAME) {
+                    name = string();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        return new DplaItem.Subject(name);
+    }
+
+    private DplaItem.ItemCollection collection() throws IOException {
+        String id = null, name = null, title = null;
+        if (openObject()) {
+            do {
+                NestedField f = key(NESTED);
+                if (f == NestedField.ID) {
+                    id = string();
+                } else if (f == NestedField.NAME) {
+                    name = string();
+                } else if (f == NestedField.TITLE) {
+                    title = string();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        return new DplaItem.ItemCollection(id, name, title);
+    }
+
+    private DplaItem.Provider provider() throws IOException {
+        String id = null, name = null;
+        if (openObject()) {
+            do {
+                NestedField f = key(NESTED);
+                if (f == NestedField.AT_ID) {
+                    id = string();
+                } else if (f == NestedField.NAME) {
+                    name = string();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        return new DplaItem.Provider(id, name);
+    }
+
+    private DplaItem.Place place() throws IOException {
+        String name = null, city = null, county = null, state = null;
+        String region = null, country = null, coordinates = null;
+        if (openObject()) {
+            do {
+                NestedField f = key(NESTED);
+                if (f == null) {
+                    skipValue();
+                    continue;
+                }
+                switch (f) {
+                    case NAME:
+                        name = string();
+                        break;
+                    case CITY:
+                        city = string();
+                        break;
+                    case COUNTY:
+                        county = string();
+                        break;
+                    case STATE:
+                        state = string();
+                        break;
+                    case REGION:
+                        region = string();
+                        break;
+                    case COUNTRY:
+                        country = string();
+                        break;
+                    case COORDINATES:
+                        coordinates = string();
+                        break;
+                    default:
+                        skipValue();
+                }
+            } while (nextMember());
+        }
+        return new DplaItem.Place(name, city, county, state, region, country, coordinates);
+    }
+
+    //------------------------------------------------------------------------//
+    // Values
+    //------------------------------------------------------------------------//
+    /**
+     * Reads a text field. If the field is an array, as it sometimes is, the
+     * first value is used.
+     *
+     * @return The value or null if it is null or an empty array.
+     */
+    private String string() throws IOException {
+        byte b = peek();
+        if (b == '"') {
+            pos++;
+            return stringBody();
+        }
+        if (b == '[') {
+            String[] all = strings();
+            return all.length == 0 ? null : all[0];
+        }
+        if (b == '{') {
+            skipValue();
+            return null;
+        }
+        return scalar();
+    }
+
+    /**
+     * Reads a field that can be a single value or an array of them.
+     *
+     * @return All of the values, or null if the field is null or not text.
+     */
+    private String[] strings() throws IOException {
+        if (peek() != '[') {
+            String s = string();
+            return s == null ? null : new String[]{s};
+        }
+        if (!openArray()) {
+            return NO_STRINGS;
+        }
+        List<String> list = new ArrayList<String>();
+        do {
+            String s = string();
+            if (s != null) {
+                list.add(s);
+            }
+        } while (nextElement());
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Reads a number, true, false or null. Numbers and booleans come back as
+     * their text. Any other bare word is not JSON and fails.
+     */
+    private String scalar() throws IOException {
+        int start = pos;
+        while (pos < buf.length) {
+            byte b = buf[pos];
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                break;
+            }
+            pos++;
+        }
+        int len = pos - start;
+        if (word(start, len, "null")) {
+            return null;
+        }
+        if (!word(start, len, "true") && !word(start, len, "false") && !number(start, len)) {
+            pos = start;
+            throw error("Expected a value");
+        }
+        return new String(buf, start, len, UTF8);
+    }
+
+    private boolean word(int start, int len, String word) {
+        if (len != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf[start + i] != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the bytes are a JSON number: -?(0|[1-9]d*)(.d+)?([eE][+-]?d+)?
+     */
+    private boolean number(int start, int len) {
+        int i = start;
+        int end = start + len;
+        if (i < end && buf[i] == '-') {
+            i++;
+        }
+        if (i < end && buf[i] == '0') {
+            i++;
+        } else {
+            int digits = digits(i, end);
+            if (digits == 0) {
+                return false;
+            }
+            i += digits;
+        }
+        if (i < end && buf[i] == '.') {
+            int digits = digits(++i, end);
+            if (digits == 0) {
+                return false;
+            }
+            i += digits;
+        }
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            if (i < end && (buf[i] == '+' || buf[i] == '-')) {
+                i++;
+            }
+            int digits = digits(i, end);
+            if (digits == 0) {
+                return false;
+            }
+            i += digits;
+        }
+        return i == end;
+    }
+
+    private int digits(int i, int end) {
+        int start = i;
+        while (i < end && buf[i] >= '0' && buf[i] <= '9') {
+            i++;
+        }
+        return i - start;
+    }
+
+    /**
+     * Reads the rest of a string, the opening quote has already been read.
+     */
+    private String stringBody() throws IOException {
+        int start = pos;
+        while (pos < buf.length) {
+            byte b = buf[pos];
+            if (b == '"') {
+                String s = new String(buf, start, pos - start, UTF8);
+                pos++;
+                return s;
+            }
+            if (b == '\\') {
+                return escapedString(start);
+            }
+            pos++;
+        }
+        throw error("Unterminated string");
+    }
+
+    /**
+     * The slow way of reading a string, for when it has escapes in it.
+     */
+    private String escapedString(int start) throws IOException {
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        int run = start;
+        while (pos < buf.length) {
+            byte b = buf[pos];
+            if (b == '"') {
+                sb.append(new String(buf, run, pos - run, UTF8));
+                pos++;
+                return sb.toString();
+            }
+            if (b != '\\') {
+                pos++;
+                continue;
+            }
+            sb.append(new String(buf, run, pos - run, UTF8));
+            if (pos + 1 >= buf.length) {
+                break;
+            }
+            byte e = buf[pos + 1];
+            pos += 2;
+            switch (e) {
+                case '"':
+                    sb.append('"');
+                    break;
+                case '\\':
+                    sb.append('\\');
+                    break;
+                case '/':
+                    sb.append('/');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append(hexChar());
+                    break;
+                default:
+                    throw error("Bad escape");
+            }
+            run = pos;
+        }
+        throw error("Unterminated string");
+    }
+
+    private char hexChar() throws IOException {
+        if (pos + 4 > buf.length) {
+            throw error("Bad unicode escape");
+        }
+        int c = 0;
+        for (int i = 0; i < 4; i++) {
+            int d = Character.digit(buf[pos++], 16);
+            if (d < 0) {
+                throw error("Bad unicode escape");
+            }
+            c = (c << 4) | d;
+        }
+        return (char) c;
+    }
+
+    /**
+     * Skips over any value, nested or not, without decoding it.
+     */
+    private void skipValue() throws IOException {
+        byte b = peek();
+        if (b == '"') {
+            pos++;
+            skipString();
+            return;
+        }
+        if (b != '{' && b != '[') {
+            scalar();
+            return;
+        }
+        int depth = 0;
+        while (pos < buf.length) {
+            b = buf[pos++];
+            if (b == '"') {
+                skipString();
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw error("Unterminated value");
+    }
+
+    private void skipString() throws IOException {
+        while (pos < buf.length) {
+            byte b = buf[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                pos++;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    //------------------------------------------------------------------------//
+    // Structure
+    //------------------------------------------------------------------------//
+    /**
+     * Reads an object key and the colon after it.
+     *
+     * @return The matching field or null if the schema doesn't know the key.
+     */
+    private <F extends Enum<F> & Field> F key(FieldTable<F> table) throws IOException {
+        expect('"');
+        int start = pos;
+        int hash = FieldTable.SEED;
+        while (pos < buf.length) {
+            byte b = buf[pos];
+            if (b == '"') {
+                F f = table.find(buf, start, pos - start, hash);
+                pos++;
+                expect(':');
+                return f;
+            }
+            if (b == '\\') {
+                //Escaped keys never happen in practice, so just do it the slow way.
+                byte[] k = escapedString(start).getBytes(UTF8);
+                expect(':');
+                return table.find(k, 0, k.length, FieldTable.hash(k, 0, k.length));
+            }
+            hash = FieldTable.step(hash, b);
+            pos++;
+        }
+        throw error("Unterminated key");
+    }
+
+    /**
+     * Reads the start of an object.
+     *
+     * @return false if the object is empty or null, true if it has members.
+     */
+    private boolean openObject() throws IOException {
+        if (!notNull()) {
+            return false;
+        }
+        expect('{');
+        if (peek() == '}') {
+            pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads what comes after an object member.
+     *
+     * @return true if another member follows, false at the end of the object.
+     */
+    private boolean nextMember() throws IOException {
+        byte b = peek();
+        pos++;
+        if (b == ',') {
+            return true;
+        }
+        if (b == '}') {
+            return false;
+        }
+        pos--;
+        throw error("Expected , or }");
+    }
+
+    /**
+     * Reads the start of an array.
+     *
+     * @return false if the array is empty or null, true if it has elements.
+     */
+    private boolean openArray() throws IOException {
+        if (!notNull()) {
+            return false;
+        }
+        expect('[');
+        if (peek() == ']') {
+            pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads what comes after an array element.
+     *
+     * @return true if another element follows, false at the end of the array.
+     */
+    private boolean nextElement() throws IOException {
+        byte b = peek();
+        pos++;
+        if (b == ',') {
+            return true;
+        }
+        if (b == ']') {
+            return false;
+        }
+        pos--;
+        throw error("Expected , or ]");
+    }
+
+    /**
+     * Reads a null if there is one. Only null itself starts with n, so
+     * anything else that does fails in scalar().
+     *
+     * @return false if the value was null, true if there is something to read.
+     */
+    private boolean notNull() throws IOException {
+        if (peek() == 'n') {
+            scalar();
+            return false;
+        }
+        return true;
+    }
+
+    private byte peek() throws IOException {
+        skipWhitespace();
+        if (pos >= buf.length) {
+            throw error("Unexpected end of JSON");
+        }
+        return buf[pos];
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw error("Expected " + c);
+        }
+        pos++;
+    }
+
+    private void skipWhitespace() {
+        while (pos < buf.length) {
+            byte b = buf[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void end() throws IOException {
+        skipWhitespace();
+        if (pos != buf.length) {
+            throw error("Unexpected data after JSON");
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at byte " + pos);
+    }
+
+    //------------------------------------------------------------------------//
+    /**
+     *
+     * A fixed hash table from key bytes to fields, built once per schema
+     * object. Lookups compare the bytes in place so no String is needed.
+     *
+     * @param <F> The fields the table holds.
+     */
+    static final class FieldTable<F extends Enum<F> & Field> {
+
+        static final int SEED = 0x811c9dc5;
+        private final Object[] fields;
+        private final int mask;
+
+        FieldTable(F[] values) {
+            int size = Integer.highestOneBit(values.length * 4 - 1) << 1;
+            fields = new Object[size];
+            mask = size - 1;
+            for (F f : values) {
+                byte[] k = f.key();
+                int i = hash(k, 0, k.length) & mask;
+                while (fields[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                fields[i] = f;
+            }
+        }
+
+        static int step(int hash, byte b) {
+            return (hash ^ b) * 0x01000193;
+        }
+
+        static int hash(byte[] b, int off, int len) {
+            int h = SEED;
+            for (int i = off; i < off + len; i++) {
+                h = step(h, b[i]);
+            }
+            return h;
+        }
+
+        @SuppressWarnings("unchecked")
+        F find(byte[] b, int off, int len, int hash) {
+            int i = hash & mask;
+            Object o;
+            while ((o = fields[i]) != null) {
+                F f = (F) o;
+                if (matches(f.key(), b, off, len)) {
+                    return f;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        private static boolean matches(byte[] key, byte[] b, int off, int len) {
+            if (key.length != len) {
+                return false;
+            }
+            for (int i = 0; i < len; i++) {
+                if (key[i] != b[off + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -32,10 +32,20 @@ package willkara.dplajavawrapper;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
-import net.sf.json.JSONArray;
-import net.sf.json.JSONObject;
-import net.sf.json.JSONSerializer;
+import java.net.URLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.httpclient.util.URIUtil;
 
@@ -53,6 +63,21 @@ public class SearchQuery {
     //Any word you would like to search for. * can be used as a wildcard.
     private String searchQuery;
     SearchOptions so;
+    //Searches that are currently running, keyed by their query URL.
+    private static final ConcurrentMap<String, FutureTask<DplaItem[]>> IN_FLIGHT = new ConcurrentHashMap<String, FutureTask<DplaItem[]>>();
+    //How long a fetch waits to connect, and then for each read, in milliseconds.
+    //Keeps a stalled connection from holding up a shared search for good.
+    private static final int CONNECT_TIMEOUT = 15000;
+    private static final int READ_TIMEOUT = 30000;
+    //Runs the fetches so that every caller, even the first, can time out on its own.
+    private static final ExecutorService FETCHERS = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "dpla-search");
+            t.setDaemon(true);
+            return t;
+        }
+    });
 
     /**
      *
@@ -88,13 +113,51 @@ public class SearchQuery {
     /**
      * Search for the items. You must have constructed a SearchQuery first.
      *
+     * If an identical search (same query URL) is already running, this call
+     * waits for that one instead of opening its own connection. Every caller
+     * gets its own array, but the DplaItems in it are shared between them, so
+     * treat the items as read-only.
+     *
      * @return An array containing the DPLA Items returned from the search
      * query.
      * @throws IOException
      */
     public DplaItem[] search() throws IOException {
+        Future<DplaItem[]> pending = inFlight(buildQueryURL(), HTTP);
+        try {
+            return await(pending, 0, null);
+        } catch (TimeoutException e) {
+            //Can't happen, we wait without a limit.
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Search for the items, giving up if no result arrives within the given
+     * time. The timeout only applies to this caller, any other callers
+     * waiting on the same search are left alone. As with search(), the
+     * DplaItems returned are shared with those callers.
+     *
+     * @param timeout How long to wait for the result.
+     * @param unit The unit of the timeout.
+     * @return An array containing the DPLA Items returned from the search
+     * query.
+     * @throws IOException
+     * @throws TimeoutException If the result did not arrive in time.
+     */
+    public DplaItem[] search(long timeout, TimeUnit unit) throws IOException, TimeoutException {
+        return await(inFlight(buildQueryURL(), HTTP), timeout, unit);
+    }
+
+    /**
+     * Builds the full URL for this query, api_key and SearchOptions included.
+     * It is also the key used to match up identical searches.
+     *
+     * @return The encoded query URL.
+     * @throws IOException
+     */
+    private String buildQueryURL() throws IOException {
         String queryURL = "";
-        String durl;
 
         //search using JUST a search query
         if (so == null && searchQuery != null) {
@@ -112,44 +175,119 @@ public class SearchQuery {
             queryURL = URIUtil.encodeQuery(String.format("http://api.dp.la/v2/items?q=%s&%s" + "%s", searchQuery, "api_key=" + apikey, so.formatSearchOptions()));
         }
 
+        return queryURL;
+    }
 
-        /*
-         * Construct the URL and then open the result of that URL. It will return a JSON string to you and will be serialized into a JSONObject.
-         * It splits the 'docs' array which contains the individual items and puts them into an array full of the items.
-         */
+    /**
+     * Finds the running fetch for the URL, or starts one if there is none.
+     * The entry is dropped once the fetch finishes so later searches go back
+     * to the API.
+     *
+     * @param queryURL The URL to fetch.
+     * @param fetcher Does the fetch if one has to be started.
+     * @return The fetch that every caller for this URL should wait on.
+     */
+    static Future<DplaItem[]> inFlight(final String queryURL, final Fetcher fetcher) {
+        FutureTask<DplaItem[]> task = IN_FLIGHT.get(queryURL);
+        if (task != null) {
+            return task;
+        }
 
-        InputStream in = new URL(queryURL).openStream();
+        final FutureTask<DplaItem[]> created = new FutureTask<DplaItem[]>(new Callable<DplaItem[]>() {
+            @Override
+            public DplaItem[] call() throws IOException {
+                try {
+                    return fetcher.fetch(queryURL);
+                } finally {
+                    IN_FLIGHT.remove(queryURL);
+                }
+            }
+        });
 
-        try {
-            durl = IOUtils.toString(in);
-        } finally {
-            IOUtils.closeQuietly(in);
+        task = IN_FLIGHT.putIfAbsent(queryURL, created);
+        if (task != null) {
+            //Someone else got there first.
+            return task;
         }
 
+        FETCHERS.execute(created);
+        return created;
+    }
 
-        JSONObject resultObject = (JSONObject) JSONSerializer.toJSON(durl);
+    /**
+     * Waits on a shared fetch and hands back this caller's own copy of the
+     * result.
+     *
+     * @param pending The fetch to wait on.
+     * @param timeout How long to wait, ignored if unit is null.
+     * @param unit The unit of the timeout, or null to wait as long as it takes.
+     * @return A copy of the items the fetch returned.
+     * @throws IOException If the fetch failed, with the fetch's exception as
+     * the cause, or if the wait was interrupted.
+     * @throws TimeoutException If the result did not arrive in time.
+     */
+    static DplaItem[] await(Future<DplaItem[]> pending, long timeout, TimeUnit unit) throws IOException, TimeoutException {
+        DplaItem[] items;
+        try {
+            items = unit == null ? pending.get() : pending.get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the search");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            //Every waiter shares the fetch's exception, so each gets its own
+            //wrapper with its own stack trace and the original as the cause.
+            throw new IOException(cause.getMessage(), cause);
+        }
 
+        //Every caller gets its own array, the items in it are shared.
+        return items.clone();
+    }
 
+    /**
+     * Fetches the items at a query URL. Tests use their own in place of HTTP.
+     */
+    interface Fetcher {
 
-        /*
-         * Create the array of DplaItems.
-         * I have it being split at the docs JSONArray.
-         * It is possible that there is a better way.
+        /**
+         * @param queryURL The URL to fetch.
+         * @return An array containing the DPLA Items returned from the URL.
+         * @throws IOException
          */
-        JSONArray resultArray = resultObject.getJSONArray("docs");
-        DplaItem[] itemArray = new DplaItem[resultArray.size()];
+        DplaItem[] fetch(String queryURL) throws IOException;
+    }
 
-        for (int i = 0; i < resultArray.size(); i++) {
-            JSONObject rec = resultArray.getJSONObject(i);
-            DplaItem di = new DplaItem(rec);
+    /**
+     * Opens the URL and decodes the result into DplaItems.
+     */
+    static final Fetcher HTTP = new Fetcher() {
+        @Override
+        public DplaItem[] fetch(String queryURL) throws IOException {
+            byte[] response;
+
+            /*
+             * Open the URL and read the whole JSON response. The 'docs' array,
+             * which contains the individual items, is decoded straight into DplaItems.
+             */
+
+            URLConnection connection = new URL(queryURL).openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            InputStream in = connection.getInputStream();
+
+            try {
+                response = IOUtils.toByteArray(in);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
 
-            itemArray[i] = di;
+            return ItemDecoder.decodeResponse(response);
 
         }
-
-        return itemArray;
-
-    }
+    };
 
     /**
      *
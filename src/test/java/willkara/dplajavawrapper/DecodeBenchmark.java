@@ -0,0 +1,190 @@
+/*
+ * Original Author: Wiliam Karavites
+ * wkaravites@gmail.com
+ * 
+ * You are free to use this software as you wish as long as you follow the license below
+ * I just ask that you attirbute the contributions of myself and other developers.
+ * 
+ * 
+ * The MIT License (MIT)
+ *
+ * Copyright (c) <2013> <William Karavites>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package willkara.dplajavawrapper;
+
+import java.io.IOException;
+import java.net.URL;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONException;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+
+/**
+ *
+ * Compares ItemDecoder with the json-lib path it replaced, on the
+ * dpla-items.json fixture. The json-lib side parses the response with
+ * JSONSerializer and reads each item the way DplaItem used to, with string
+ * key lookups on every call.
+ *
+ * Run it with:
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=willkara.dplajavawrapper.DecodeBenchmark
+ *
+ * @author willkara
+ */
+public class DecodeBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int PAGES = 200;
+
+    public static void main(String[] args) throws IOException {
+        byte[] json = ItemDecoderTest.fixture();
+        System.out.println("Fixture: " + json.length + " bytes, "
+                + ItemDecoder.decodeResponse(json).length + " items, " + PAGES + " pages a round");
+
+        for (int r = 1; r <= ROUNDS; r++) {
+            long t = System.nanoTime();
+            long sink = jsonLib(json);
+            long jsonLib = System.nanoTime() - t;
+
+            t = System.nanoTime();
+            sink += decoder(json);
+            long decoder = System.nanoTime() - t;
+
+            System.out.printf("Round %d: json-lib %.2f ms/page, decoder %.2f ms/page, %.1fx (%d)%n",
+                    r, jsonLib / 1e6 / PAGES, decoder / 1e6 / PAGES, (double) jsonLib / decoder, sink);
+        }
+    }
+
+    private static long jsonLib(byte[] json) throws IOException {
+        long sink = 0;
+        for (int p = 0; p < PAGES; p++) {
+            JSONObject response = (JSONObject) JSONSerializer.toJSON(new String(json, ItemDecoder.UTF8));
+            JSONArray docs = response.getJSONArray("docs");
+            for (int i = 0; i < docs.size(); i++) {
+                JSONObject doc = docs.getJSONObject(i);
+                JSONObject sr = doc.getJSONObject("sourceResource");
+                sink += doc.getString("id").length();
+                sink += new URL(doc.getString("isShownAt")).toString().length();
+                sink += length(string(sr, "title"));
+                sink += length(string(sr, "description"));
+                sink += length(creators(sr));
+                sink += length(subjects(sr));
+                sink += length(languageName(sr));
+                sink += length(collectionID(sr));
+                sink += length(spatial(sr));
+            }
+        }
+        return sink;
+    }
+
+    /*
+     * The json-lib reads below are the bodies of the old DplaItem getters.
+     */
+    private static String string(JSONObject sr, String key) {
+        try {
+            return sr.getString(key);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static String[] creators(JSONObject sr) {
+        try {
+            Object[] creatorJSONarray = sr.getJSONArray("creator").toArray();
+            String[] creatorArray = new String[creatorJSONarray.length];
+            int i = 0;
+            for (Object creator : creatorJSONarray) {
+                creatorArray[i] = creator.toString();
+                i++;
+            }
+            return creatorArray;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static String[] subjects(JSONObject sr) {
+        try {
+            JSONArray subArray = sr.getJSONArray("subject");
+            String sub = "";
+            for (int i = 0; i < subArray.size(); i++) {
+                JSONObject rec = subArray.getJSONObject(i);
+                sub += rec.getString("name").trim() + ",";
+            }
+            return sub.split(",");
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static String languageName(JSONObject sr) {
+        try {
+            return sr.getJSONArray("language").getJSONObject(0).getString("name");
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static String collectionID(JSONObject sr) {
+        try {
+            return sr.getJSONObject("collection").getString("id");
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static Object[] spatial(JSONObject sr) {
+        try {
+            return sr.getJSONArray("spatial").toArray();
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static long decoder(byte[] json) throws IOException {
+        long sink = 0;
+        for (int p = 0; p < PAGES; p++) {
+            for (DplaItem item : ItemDecoder.decodeResponse(json)) {
+                DplaItem.SourceResource sr = item.getSourceResource();
+                sink += item.getID().length();
+                sink += item.getItemURL().toString().length();
+                sink += length(sr.getTitle());
+                sink += length(sr.getDescription());
+                sink += length(sr.getCreators());
+                sink += length(sr.getSubjects());
+                sink += length(sr.getLanguageName());
+                sink += length(sr.getCollectionID());
+                sink += length(sr.getSpatial());
+            }
+        }
+        return sink;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static int length(Object[] a) {
+        return a == null ? 0 : a.length;
+    }
+}
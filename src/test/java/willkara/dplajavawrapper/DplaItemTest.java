@@ -0,0 +1,86 @@
+/*
+ * Original Author: Wiliam Karavites
+ * wkaravites@gmail.com
+ * 
+ * You are free to use this software as you wish as long as you follow the license below
+ * I just ask that you attirbute the contributions of myself and other developers.
+ * 
+ * 
+ * The MIT License (MIT)
+ *
+ * Copyright (c) <2013> <William Karavites>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package willkara.dplajavawrapper;
+
+import net.sf.json.JSONObject;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * Checks the JSONObject constructors of DplaItem and SourceResource.
+ *
+ * @author willkara
+ */
+public class DplaItemTest {
+
+    private static final String ITEM = "{\"id\":\"x\",\"provider\":{\"@id\":\"p\",\"name\":\"NYPL\"},"
+            + "\"sourceResource\":{\"title\":\"T\",\"language\":[\"English\"],\"collection\":\"abc\","
+            + "\"spatial\":[\"Boston\"]}}";
+
+    @Test
+    public void sourceResourceGetsTheItemProvider() {
+        JSONObject j = JSONObject.fromObject(ITEM);
+
+        assertEquals("NYPL", new DplaItem(j).getSourceResource().getProviderName());
+        assertEquals("NYPL", new DplaItem.SourceResource(j).getProviderName());
+    }
+
+    @Test
+    public void ownProviderWins() {
+        JSONObject j = JSONObject.fromObject("{\"provider\":{\"name\":\"Item\"},"
+                + "\"sourceResource\":{\"provider\":[{\"name\":\"Own\"}]}}");
+
+        assertEquals("Own", new DplaItem(j).getSourceResource().getProviderName());
+        assertEquals("Own", new DplaItem.SourceResource(j).getProviderName());
+    }
+
+    @Test
+    public void oddShapesDontThrow() {
+        JSONObject j = JSONObject.fromObject(ITEM);
+        DplaItem item = new DplaItem(j);
+        DplaItem.SourceResource s = new DplaItem.SourceResource(j);
+
+        assertEquals("T", item.getSourceResource().getTitle());
+        assertEquals("T", s.getTitle());
+        assertEquals("English", s.getLanguageName());
+        assertEquals("abc", s.getCollectionNAME());
+        assertEquals("Boston", s.getSpatial()[0].getName());
+    }
+
+    @Test
+    public void jsonObjectIsKept() {
+        JSONObject j = JSONObject.fromObject(ITEM);
+
+        assertEquals(j.getJSONObject("sourceResource"), new DplaItem(j).getSourceResource().sr);
+        assertEquals(j.getJSONObject("sourceResource"), new DplaItem.SourceResource(j).sr);
+    }
+}
@@ -0,0 +1,364 @@
+/*
+ * Original Author: Wiliam Karavites
+ * wkaravites@gmail.com
+ * 
+ * You are free to use this software as you wish as long as you follow the license below
+ * I just ask that you attirbute the contributions of myself and other developers.
+ * 
+ * 
+ * The MIT License (MIT)
+ *
+ * Copyright (c) <2013> <William Karavites>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package willkara.dplajavawrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
+import net.sf.json.JSONSerializer;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * Checks ItemDecoder against json-lib. The fixture is a page of results
+ * shaped like the DPLA v2 API returns them, and every getter is compared with
+ * what json-lib reads out of the same JSON.
+ *
+ * @author willkara
+ */
+public class ItemDecoderTest {
+
+    static byte[] fixture() throws IOException {
+        InputStream in = ItemDecoderTest.class.getResourceAsStream("/dpla-items.json");
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private static DplaItem[] decode(String json) throws IOException {
+        return ItemDecoder.decodeResponse(json.getBytes(ItemDecoder.UTF8));
+    }
+
+    private static DplaItem.SourceResource decodeOne(String sourceResource) throws IOException {
+        return decode("{\"docs\":[{\"sourceResource\":" + sourceResource + "}]}")[0].getSourceResource();
+    }
+
+    @Test
+    public void fixtureMatchesJsonLib() throws IOException {
+        byte[] json = fixture();
+        DplaItem[] items = ItemDecoder.decodeResponse(json);
+        JSONArray docs = ((JSONObject) JSONSerializer.toJSON(new String(json, ItemDecoder.UTF8))).getJSONArray("docs");
+
+        assertEquals(docs.size(), items.length);
+        for (int i = 0; i < docs.size(); i++) {
+            JSONObject doc = docs.getJSONObject(i);
+            assertMatches(doc, items[i]);
+            //The JSONObject constructor goes through the same decoder.
+            assertMatches(doc, new DplaItem(doc));
+        }
+    }
+
+    private static void assertMatches(JSONObject doc, DplaItem item) {
+        String id = doc.getString("id");
+        JSONObject sr = doc.getJSONObject("sourceResource");
+        DplaItem.SourceResource s = item.getSourceResource();
+
+        assertEquals(id, item.getID());
+        assertEquals(id, doc.getString("isShownAt"), item.getItemURL().toString());
+        assertEquals(id, doc.getString("dataProvider"), item.getDataProvider());
+        assertEquals(id, doc.getJSONObject("provider").getString("name"), item.getProviders()[0].getName());
+        assertEquals(id, doc.getJSONObject("provider").getString("@id"), item.getProviders()[0].getId());
+        assertEquals(id, doc.toString(), JSONObject.fromObject(item.getJSONString()).toString());
+
+        assertEquals(id, first(sr, "title"), s.getTitle());
+        assertEquals(id, first(sr, "description"), s.getDescription());
+        assertEquals(id, first(sr, "rights"), s.getCopyRights());
+        assertEquals(id, first(sr, "format"), s.getFormat());
+        assertEquals(id, first(sr, "publisher"), s.getPublisher());
+        assertArrayEquals(id, all(sr, "creator"), s.getCreators());
+        assertEquals(id, doc.getJSONObject("provider").getString("name"), s.getProviderName());
+
+        //One entry per subject. The old getter split names on commas, see
+        //subjectNamesKeepTheirCommas().
+        List<JSONObject> subjects = nested(sr, "subject");
+        String[] subjectNames = new String[subjects.size()];
+        for (int j = 0; j < subjectNames.length; j++) {
+            subjectNames[j] = subjects.get(j).getString("name").trim();
+        }
+        assertArrayEquals(id, subjectNames, s.getSubjects());
+
+        List<JSONObject> languages = nested(sr, "language");
+        assertEquals(id, languages.size(), s.getLanguages().length);
+        assertEquals(id, languages.get(0).getString("name"), s.getLanguageName());
+        assertEquals(id, languages.get(0).getString("iso639_3"), s.getISOLanguage());
+        assertEquals(id, sr.getJSONArray("language").toString(), s.getLanguageInfo().toString());
+
+        JSONObject collection = nested(sr, "collection").get(0);
+        assertEquals(id, collection.getString("id"), s.getCollectionID());
+        assertEquals(id, collection.getString("name"), s.getCollectionNAME());
+        assertEquals(id, collection.getString("title"), s.getCollectionTITLE());
+
+        List<JSONObject> spatial = nested(sr, "spatial");
+        DplaItem.Place[] places = s.getSpatial();
+        assertEquals(id, spatial.size(), places.length);
+        for (int j = 0; j < places.length; j++) {
+            JSONObject p = spatial.get(j);
+            assertEquals(id, p.optString("name", null), places[j].getName());
+            assertEquals(id, p.optString("city", null), places[j].getCity());
+            assertEquals(id, p.optString("county", null), places[j].getCounty());
+            assertEquals(id, p.optString("state", null), places[j].getState());
+            assertEquals(id, p.optString("region", null), places[j].getRegion());
+            assertEquals(id, p.optString("country", null), places[j].getCountry());
+            assertEquals(id, p.optString("coordinates", null), places[j].getCoordinates());
+        }
+    }
+
+    /**
+     * What json-lib gives for a text field, using the first value of an array.
+     */
+    private static String first(JSONObject o, String key) {
+        String[] values = all(o, key);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    private static String[] all(JSONObject o, String key) {
+        Object v = o.opt(key);
+        if (v == null || v instanceof JSONNull) {
+            return null;
+        }
+        if (v instanceof JSONArray) {
+            JSONArray a = (JSONArray) v;
+            String[] values = new String[a.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = a.getString(i);
+            }
+            return values;
+        }
+        return new String[]{v.toString()};
+    }
+
+    private static List<JSONObject> nested(JSONObject o, String key) {
+        List<JSONObject> list = new ArrayList<JSONObject>();
+        Object v = o.get(key);
+        if (v instanceof JSONArray) {
+            JSONArray a = (JSONArray) v;
+            for (int i = 0; i < a.size(); i++) {
+                list.add(a.getJSONObject(i));
+            }
+        } else {
+            list.add((JSONObject) v);
+        }
+        return list;
+    }
+
+    @Test
+    public void unicodeEscapesAndSurrogatePairs() throws IOException {
+        DplaItem item = decode("{\"docs\":[{\"id\":\"caf\\u00e9 \\ud83c\\udf55\","
+                + "\"sourceResource\":{\"title\":\"tab\\there \\\"quoted\\\" back\\\\slash \\/ \\b\\f\\n\\r\"}}]}")[0];
+
+        assertEquals("café 🍕", item.getID());
+        assertEquals("tab\there \"quoted\" back\\slash / \b\f\n\r", item.getSourceResource().getTitle());
+    }
+
+    @Test
+    public void rawUtf8IsDecoded() throws IOException {
+        DplaItem item = decode("{\"docs\":[{\"id\":\"Zürich 🍕\"}]}")[0];
+
+        assertEquals("Zürich 🍕", item.getID());
+    }
+
+    @Test
+    public void escapedKeysAreMatched() throws IOException {
+        DplaItem item = decode("{\"d\\u006fcs\":[{\"i\\u0064\":\"x\","
+                + "\"source\\u0052esource\":{\"titl\\u0065\":\"T\"}}]}")[0];
+
+        assertEquals("x", item.getID());
+        assertEquals("T", item.getSourceResource().getTitle());
+    }
+
+    @Test
+    public void nullValuesStayNull() throws IOException {
+        DplaItem item = decode("{\"docs\":[{\"id\":null,\"provider\":null,\"sourceResource\":{"
+                + "\"title\":null,\"creator\":null,\"subject\":null,\"language\":null,"
+                + "\"collection\":null,\"spatial\":null,\"provider\":null}}]}")[0];
+        DplaItem.SourceResource s = item.getSourceResource();
+
+        assertNull(item.getID());
+        assertNull(item.getProviders());
+        assertNull(s.getTitle());
+        assertNull(s.getCreators());
+        assertNull(s.getSubjects());
+        assertNull(s.getLanguages());
+        assertNull(s.getLanguageName());
+        assertNull(s.getCollections());
+        assertNull(s.getSpatial());
+        assertNull(s.getProviderName());
+    }
+
+    @Test
+    public void missingValuesAreNull() throws IOException {
+        DplaItem.SourceResource s = decodeOne("{}");
+
+        assertNull(s.getTitle());
+        assertNull(s.getCreators());
+        assertNull(s.getSubjects());
+        assertNull(s.getLanguageInfo());
+        assertNull(s.getCollectionID());
+    }
+
+    @Test
+    public void singleObjectAndArrayGiveTheSameResult() throws IOException {
+        DplaItem.SourceResource single = decodeOne("{\"creator\":\"Doe, John\","
+                + "\"language\":{\"name\":\"English\",\"iso639_3\":\"eng\"},"
+                + "\"collection\":{\"id\":\"c1\",\"name\":\"n\",\"title\":\"t\"},"
+                + "\"spatial\":{\"name\":\"Boston\",\"state\":\"Massachusetts\"}}");
+        DplaItem.SourceResource many = decodeOne("{\"creator\":[\"Doe, John\"],"
+                + "\"language\":[{\"name\":\"English\",\"iso639_3\":\"eng\"}],"
+                + "\"collection\":[{\"id\":\"c1\",\"name\":\"n\",\"title\":\"t\"}],"
+                + "\"spatial\":[{\"name\":\"Boston\",\"state\":\"Massachusetts\"}]}");
+
+        for (DplaItem.SourceResource s : new DplaItem.SourceResource[]{single, many}) {
+            assertArrayEquals(new String[]{"Doe, John"}, s.getCreators());
+            assertEquals("English", s.getLanguageName());
+            assertEquals("eng", s.getISOLanguage());
+            assertEquals("c1", s.getCollectionID());
+            assertEquals("t", s.getCollectionTITLE());
+            assertEquals(1, s.getSpatial().length);
+            assertEquals("Massachusetts", s.getSpatial()[0].getState());
+        }
+    }
+
+    @Test
+    public void bareStringsAreTakenAsNames() throws IOException {
+        DplaItem.SourceResource s = decodeOne("{\"language\":[\"English\"],\"collection\":\"abc\","
+                + "\"spatial\":[\"Boston\"],\"subject\":[\"Maps\"],\"provider\":\"NYPL\"}");
+
+        assertEquals("English", s.getLanguageName());
+        assertNull(s.getISOLanguage());
+        assertEquals("abc", s.getCollectionNAME());
+        assertNull(s.getCollectionID());
+        assertEquals("Boston", s.getSpatial()[0].getName());
+        assertArrayEquals(new String[]{"Maps"}, s.getSubjects());
+        assertEquals("NYPL", s.getProviderName());
+    }
+
+    @Test
+    public void unexpectedShapesAreSkipped() throws IOException {
+        DplaItem[] items = decode("{\"docs\":[7,{\"id\":\"a\",\"sourceResource\":{"
+                + "\"language\":[5,true,[\"x\"],{\"name\":\"English\"}],\"collection\":5,"
+                + "\"spatial\":{\"name\":{\"nested\":1}},\"title\":{\"a\":1},\"creator\":[{\"a\":1},\"Doe\"],"
+                + "\"subject\":[null]}},{\"id\":\"b\",\"sourceResource\":\"oops\"},null]}");
+
+        assertEquals(2, items.length);
+        DplaItem.SourceResource s = items[0].getSourceResource();
+        assertEquals("a", items[0].getID());
+        assertEquals(1, s.getLanguages().length);
+        assertEquals("English", s.getLanguageName());
+        assertNull(s.getCollections());
+        assertNull(s.getSpatial()[0].getName());
+        assertNull(s.getTitle());
+        assertArrayEquals(new String[]{"Doe"}, s.getCreators());
+        assertEquals(0, s.getSubjects().length);
+        assertEquals("b", items[1].getID());
+        assertNull(items[1].getSourceResource());
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws IOException {
+        DplaItem item = decode("{\"count\":1,\"docs\":[{\"extra\":{\"a\":[{\"b\":\"]}\\\"[\"}],\"c\":[[[]],{}],"
+                + "\"d\":-1.5e3,\"e\":false,\"f\":null},\"id\":\"after\"}],\"facets\":[]}")[0];
+
+        assertEquals("after", item.getID());
+    }
+
+    @Test
+    public void itemKeepsOnlyItsOwnJson() throws IOException {
+        byte[] json = fixture();
+        DplaItem item = ItemDecoder.decodeResponse(json)[0];
+
+        assertTrue(item.source.length < json.length / 10);
+        assertEquals(item.source.length, item.getJSONString().getBytes(ItemDecoder.UTF8).length);
+        assertTrue(item.getJSONString().startsWith("{"));
+        assertTrue(item.getJSONString().endsWith("}"));
+    }
+
+    @Test
+    public void subjectNamesKeepTheirCommas() throws IOException {
+        DplaItem.SourceResource s = decodeOne("{\"subject\":[{\"name\":\"Boston (Mass.), History \"},"
+                + "{\"name\":\"Cooking, Italian\"}]}");
+
+        assertArrayEquals(new String[]{"Boston (Mass.), History", "Cooking, Italian"}, s.getSubjects());
+    }
+
+    @Test
+    public void emptySubjectsGiveAnEmptyArray() throws IOException {
+        assertEquals(0, decodeOne("{\"subject\":[]}").getSubjects().length);
+    }
+
+    @Test
+    public void numbersAndBooleansAreKeptAsText() throws IOException {
+        DplaItem.SourceResource s = decodeOne("{\"title\":-1.5e3,\"format\":0,\"publisher\":true,"
+                + "\"creator\":[false,12.25,1E+2]}");
+
+        assertEquals("-1.5e3", s.getTitle());
+        assertEquals("0", s.getFormat());
+        assertEquals("true", s.getPublisher());
+        assertArrayEquals(new String[]{"false", "12.25", "1E+2"}, s.getCreators());
+    }
+
+    @Test
+    public void bareWordsFail() {
+        String[] values = {"foo", "nope", "nul", "nulls", "True", "01", "1.", ".5", "-", "1e", "0x10", "NaN"};
+        for (String field : new String[]{"title", "creator", "language", "collection"}) {
+            for (String value : values) {
+                try {
+                    decodeOne("{\"" + field + "\":" + value + "}");
+                    fail(field + ": " + value + " should not decode");
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(), e.getMessage().startsWith("Expected a value"));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedJsonFails() throws IOException {
+        decode("{\"docs\":[{\"id\":\"x\"}");
+    }
+
+    @Test(expected = IOException.class)
+    public void missingColonFails() throws IOException {
+        decode("{\"docs\":[{\"id\" \"x\"}]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void trailingDataFails() throws IOException {
+        decode("{\"docs\":[]} x");
+    }
+}
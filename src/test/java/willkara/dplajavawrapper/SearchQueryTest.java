@@ -0,0 +1,221 @@
+/*
+ * Original Author: Wiliam Karavites
+ * wkaravites@gmail.com
+ * 
+ * You are free to use this software as you wish as long as you follow the license below
+ * I just ask that you attirbute the contributions of myself and other developers.
+ * 
+ * 
+ * The MIT License (MIT)
+ *
+ * Copyright (c) <2013> <William Karavites>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package willkara.dplajavawrapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * Checks that identical searches running at the same time share one fetch.
+ * The fetches are done by a stand-in that waits until the test lets it go.
+ *
+ * @author willkara
+ */
+public class SearchQueryTest {
+
+    private static final int CALLERS = 20;
+    private static final AtomicInteger URLS = new AtomicInteger();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final DplaItem[] result = new DplaItem[]{new DplaItem(), new DplaItem()};
+    private ExecutorService callers;
+    private String url;
+
+    @Before
+    public void setUp() {
+        callers = Executors.newFixedThreadPool(CALLERS);
+        //IN_FLIGHT is shared by every test, so each one gets its own URL.
+        url = "http://example.org/items?q=" + URLS.incrementAndGet();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    /**
+     * Returns the result once released, counting how often it is called.
+     */
+    private final SearchQuery.Fetcher succeeding = new SearchQuery.Fetcher() {
+        @Override
+        public DplaItem[] fetch(String queryURL) throws IOException {
+            fetches.incrementAndGet();
+            awaitRelease();
+            return result;
+        }
+    };
+
+    private final IOException failure = new IOException("boom");
+
+    /**
+     * Fails once released, with the same exception every time.
+     */
+    private final SearchQuery.Fetcher failing = new SearchQuery.Fetcher() {
+        @Override
+        public DplaItem[] fetch(String queryURL) throws IOException {
+            fetches.incrementAndGet();
+            awaitRelease();
+            throw failure;
+        }
+    };
+
+    private void awaitRelease() throws IOException {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Starts the callers, each searching for the URL, and waits until every
+     * one has joined a fetch before letting the fetch finish.
+     */
+    private List<Future<DplaItem[]>> searchConcurrently(final SearchQuery.Fetcher fetcher) throws InterruptedException {
+        final CountDownLatch joined = new CountDownLatch(CALLERS);
+        List<Future<DplaItem[]>> results = new ArrayList<Future<DplaItem[]>>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(callers.submit(new Callable<DplaItem[]>() {
+                @Override
+                public DplaItem[] call() throws Exception {
+                    Future<DplaItem[]> pending = SearchQuery.inFlight(url, fetcher);
+                    joined.countDown();
+                    return SearchQuery.await(pending, 0, null);
+                }
+            }));
+        }
+        assertTrue(joined.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        return results;
+    }
+
+    @Test(timeout = 20000)
+    public void concurrentCallersShareOneFetch() throws Exception {
+        Set<DplaItem[]> arrays = new HashSet<DplaItem[]>();
+        for (Future<DplaItem[]> f : searchConcurrently(succeeding)) {
+            DplaItem[] items = f.get();
+            assertArrayEquals(result, items);
+            arrays.add(items);
+        }
+
+        assertEquals(1, fetches.get());
+        //Each caller gets its own array.
+        assertEquals(CALLERS, arrays.size());
+        assertFalse(arrays.contains(result));
+    }
+
+    @Test(timeout = 20000)
+    public void failureReachesEveryWaiter() throws Exception {
+        Set<Throwable> thrown = new HashSet<Throwable>();
+        for (Future<DplaItem[]> f : searchConcurrently(failing)) {
+            try {
+                f.get();
+                fail("The search should have failed");
+            } catch (ExecutionException e) {
+                Throwable t = e.getCause();
+                assertTrue(t instanceof IOException);
+                assertEquals("boom", t.getMessage());
+                assertSame(failure, t.getCause());
+                thrown.add(t);
+            }
+        }
+
+        assertEquals(1, fetches.get());
+        //Each caller gets its own exception.
+        assertEquals(CALLERS, thrown.size());
+    }
+
+    @Test(timeout = 20000)
+    public void timeoutOnlyAppliesToItsCaller() throws Exception {
+        Future<DplaItem[]> first = SearchQuery.inFlight(url, succeeding);
+        try {
+            SearchQuery.await(first, 50, TimeUnit.MILLISECONDS);
+            fail("The search should have timed out");
+        } catch (TimeoutException e) {
+            //expected
+        }
+
+        assertFalse(first.isDone());
+        Future<DplaItem[]> second = SearchQuery.inFlight(url, succeeding);
+        assertSame(first, second);
+
+        release.countDown();
+        assertArrayEquals(result, SearchQuery.await(second, 10, TimeUnit.SECONDS));
+        assertEquals(1, fetches.get());
+    }
+
+    @Test(timeout = 20000)
+    public void finishedFetchIsDroppedAfterSuccess() throws Exception {
+        release.countDown();
+        Future<DplaItem[]> first = SearchQuery.inFlight(url, succeeding);
+        SearchQuery.await(first, 0, null);
+
+        Future<DplaItem[]> second = SearchQuery.inFlight(url, succeeding);
+        assertNotSame(first, second);
+        SearchQuery.await(second, 0, null);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test(timeout = 20000)
+    public void finishedFetchIsDroppedAfterFailure() throws Exception {
+        release.countDown();
+        Future<DplaItem[]> first = SearchQuery.inFlight(url, failing);
+        try {
+            SearchQuery.await(first, 0, null);
+            fail("The search should have failed");
+        } catch (IOException e) {
+            assertSame(failure, e.getCause());
+        }
+
+        Future<DplaItem[]> second = SearchQuery.inFlight(url, succeeding);
+        assertNotSame(first, second);
+        assertArrayEquals(result, SearchQuery.await(second, 0, null));
+        assertEquals(2, fetches.get());
+    }
+}